@@ -29,7 +29,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 import javax.swing.JOptionPane;
@@ -50,7 +50,6 @@ import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.DefaultNameFormatter;
 import org.openstreetmap.josm.data.osm.Node;
 import org.openstreetmap.josm.data.osm.OsmPrimitive;
-import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.HelpAwareOptionPane;
@@ -65,18 +64,36 @@ import org.openstreetmap.josm.tools.Utils;
 
 public final class SnapNewNodesAction extends JosmAction {
 
+    private final SnappingPrecomputer precomputer = new SnappingPrecomputer();
+
     public SnapNewNodesAction() {
         super(tr("Snap Ways"), "simplify", tr("Snap a way to another way"),
                 Shortcut.registerShortcut("tools:snapnewnodes", tr("Tool: {0}",
                         tr("Snap Ways")), KeyEvent.VK_S, Shortcut.CTRL_SHIFT),
                 true, "snapnewnodes", true);
+        precomputer.install();
+    }
+
+    @Override
+    public void destroy() {
+        precomputer.uninstall();
+        super.destroy();
+    }
+
+    /** Find selected ways that can take part in snapping
+     * @param ds - dataset to look for selected ways in
+     * @return list of selected complete ways
+     */
+    static List<Way> getEligibleWays(final DataSet ds) {
+        return ds.getSelectedWays().stream()
+                .filter(p -> !p.isIncomplete())
+                .collect(Collectors.toList());
     }
 
     @Override
     public void actionPerformed(final ActionEvent e) {
         Logging.debug("Snap ways action started");
-        final double distThreshold = Config.getPref().getDouble(
-                    SnapNewNodesPreferenceSetting.DIST_THRESHOLD, 10.0);
+        final double distThreshold = SnapNewNodesPreferenceSetting.getDistThreshold();
         long startTime = System.nanoTime();
 
         final DataSet ds = getLayerManager().getEditDataSet();
@@ -84,9 +101,7 @@ public final class SnapNewNodesAction extends JosmAction {
             return;
         ds.beginUpdate();
         try {
-            List<Way> selectedWays = ds.getSelectedWays().stream()
-                    .filter(p -> !p.isIncomplete())
-                    .collect(Collectors.toList());
+            List<Way> selectedWays = getEligibleWays(ds);
             if (selectedWays.size() != 2) {
                 new Notification(
                         tr("Please select exactly least two ways to snap."))
@@ -105,7 +120,13 @@ public final class SnapNewNodesAction extends JosmAction {
                     srcWay.getDisplayName(DefaultNameFormatter.getInstance()),
                     dstWay.getDisplayName(DefaultNameFormatter.getInstance()));
 
-            List<ReplacementPairs> replPairs = getReplacementPairs(distThreshold, srcWay, dstWay);
+            final SnappingInput input = new SnappingInput(srcWay, dstWay, distThreshold);
+            List<ReplacementPairs> replPairs = precomputer.takeResult(input);
+            if (replPairs == null) {
+                replPairs = getReplacementPairs(input, () -> false);
+            } else {
+                Logging.debug("Using precomputed replacement pairs");
+            }
 
             if (replPairs.size() > 0) {
                 /* add a fake stub end item to allow copying of the tail */
@@ -342,16 +363,17 @@ public final class SnapNewNodesAction extends JosmAction {
     }
 
     /**
-     * @param distThreshold distance between nodes and ways to start snapping
-     * @param srcWay - from which way to snap nodes
-     * @param dstWay - to which way to snap
+     * @param input - snapshot of the source and target ways. As it does not
+     * touch the dataset, this may be run outside of EDT.
+     * @param isCancelled - polled between nodes to abandon a calculation
+     * whose result is no longer needed
      * @return list of tuples that contain all segments of srcWay that need to
      * be replaced with segments of dstWay and new nodes to be created
-     * at transition points */
-    private List<ReplacementPairs> getReplacementPairs(final double distThreshold,
-                                                       final Way srcWay,
-                                                       final Way dstWay) {
-        final int srcWaySize = srcWay.getNodesCount();
+     * at transition points, or null if the calculation was cancelled */
+    static List<ReplacementPairs> getReplacementPairs(final SnappingInput input,
+                                                      final BooleanSupplier isCancelled) {
+        final double distThreshold = input.distThreshold;
+        final int srcWaySize = input.srcCoords.length;
         List<ReplacementPairs> replPairs = new ArrayList<>();
 
         ReplacementPairs curPair = new ReplacementPairs();
@@ -361,15 +383,15 @@ public final class SnapNewNodesAction extends JosmAction {
                                     Double.POSITIVE_INFINITY, -1);
 
         for (int i = 0; i < srcWaySize; i ++) {
-            Node n = srcWay.getNode(i);
+            if (isCancelled.getAsBoolean()) {
+                return null;
+            }
             SnappingPlace sp = null;
 
-            if (nodeGluesWays(n) || n.isTagged()) {
-                /* Nodes tying several ways or bearing tags should be kept
-                 * untouched */
+            if (input.srcFixed[i]) {
                 sp = fixedNodeStub;
             } else {
-                sp = calculateNearestPointOnWay(n, dstWay);
+                sp = calculateNearestPointOnWay(input.srcCoords[i], input.dstCoords);
                 assert sp.dstIndex >= 0;
             }
 
@@ -431,12 +453,9 @@ public final class SnapNewNodesAction extends JosmAction {
      * lies not on a line but on a curve connecting b and c somewhat roughly
      * inside their bounding box. */
     private static Pair<LatLon, Double> calculateNearestPointOnSegment(
-                                                        final Node a,
-                                                        final Node b,
-                                                        final Node c) {
-        LatLon a_p = a.getCoor();
-        LatLon b_p = b.getCoor();
-        LatLon c_p = c.getCoor();
+                                                        final LatLon a_p,
+                                                        final LatLon b_p,
+                                                        final LatLon c_p) {
 
         /* An arbitrarily chosen threshold for squared length of [b;c]. For best
            results it should depend on chosen snapping threshold converted to
@@ -466,11 +485,11 @@ public final class SnapNewNodesAction extends JosmAction {
     }
 
     /** Find a closest point on a way to n
-     * @param n - the node to find a projection of
-     * @param w - way to snap to
+     * @param n - coordinates of the node to find a projection of
+     * @param w - coordinates of nodes of the way to snap to
      * @return {@link SnappingPlace} for that node
      */
-    private static SnappingPlace calculateNearestPointOnWay(final Node n, final Way w) {
+    private static SnappingPlace calculateNearestPointOnWay(final LatLon n, final LatLon[] w) {
         int insPos = -1;
         double minDistance = Double.POSITIVE_INFINITY;
         LatLon newCoords = null;
@@ -478,10 +497,10 @@ public final class SnapNewNodesAction extends JosmAction {
         // Some speedup might be obtained from checking for bounding box
         // intersections of w and n before calculating all the distances.
 
-        for (int k = 0; k < w.getNodesCount()-1; k ++) {
+        for (int k = 0; k < w.length-1; k ++) {
             Pair<LatLon, Double> res = calculateNearestPointOnSegment(n,
-                    w.getNode(k),
-                    w.getNode(k+1));
+                    w[k],
+                    w[k+1]);
             double distance = res.b;
             if (distance < minDistance) {
                 minDistance = distance;
@@ -493,23 +512,6 @@ public final class SnapNewNodesAction extends JosmAction {
     }
 
 
-    private static boolean nodeGluesWays(final Node node) {
-        Set<Node> referenceNeighbours = null;
-        for (final OsmPrimitive ref : node.getReferrers()) {
-            if (ref.getType() == OsmPrimitiveType.WAY) {
-                final Way way = ((Way) ref);
-                final Set<Node> neighbours = way.getNeighbours(node);
-                if (referenceNeighbours == null) {
-                    referenceNeighbours = neighbours;
-                } else if (!referenceNeighbours.containsAll(neighbours)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
-    }
-
     @Override
     protected void updateEnabledState() {
         if (getLayerManager().getEditDataSet() == null) {
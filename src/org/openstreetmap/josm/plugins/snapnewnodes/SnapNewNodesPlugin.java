@@ -22,12 +22,21 @@ import org.openstreetmap.josm.gui.MainMenu;
 import org.openstreetmap.josm.gui.preferences.PreferenceSetting;
 import org.openstreetmap.josm.plugins.Plugin;
 import org.openstreetmap.josm.plugins.PluginInformation;
+import org.openstreetmap.josm.tools.Destroyable;
 
-public class SnapNewNodesPlugin extends Plugin {
+public class SnapNewNodesPlugin extends Plugin implements Destroyable {
+
+    private final SnapNewNodesAction action = new SnapNewNodesAction();
 
     public SnapNewNodesPlugin(final PluginInformation info) {
         super(info);
-        MainMenu.add(MainApplication.getMenu().moreToolsMenu, new SnapNewNodesAction());
+        MainMenu.add(MainApplication.getMenu().moreToolsMenu, action);
+    }
+
+    @Override
+    public void destroy() {
+        /* Stops background precomputation of the action */
+        action.destroy();
     }
 
     @Override
@@ -35,6 +35,11 @@ public class SnapNewNodesPreferenceSetting extends DefaultTabPreferenceSetting {
     static final String DIST_THRESHOLD = "snap-new-nodes.dist.threshold";
     static final String CANDIDATE_LENGTH_THRESHOLD = "snap-new-nodes.candidate.threshold";
 
+    /** @return distance between nodes and ways to start snapping, in meters */
+    static double getDistThreshold() {
+        return Config.getPref().getDouble(DIST_THRESHOLD, 10.0);
+    }
+
     private final JTextField distanceThreshold = new JosmTextField(8);
     private final JTextField candidateLengthThreshold = new JosmTextField(8);
 
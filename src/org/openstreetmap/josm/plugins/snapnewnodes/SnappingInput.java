@@ -0,0 +1,113 @@
+/*
+ * This file is part of SnapNewNodes plugin
+ * Copyright (c) 2019 Grigory Rechistov
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 2 or later
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.openstreetmap.josm.plugins.snapnewnodes;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.Way;
+
+/** A detached copy of everything needed to calculate replacement pairs
+ * for a pair of ways. It does not reference the dataset besides the two
+ * ways themselves, so it is safe to process it outside of EDT.
+ * Take it on EDT or while holding the dataset lock.
+ */
+class SnappingInput {
+    final Way srcWay;
+    final Way dstWay;
+    final double distThreshold;
+    final LatLon[] srcCoords; // coordinates of source way nodes
+    final boolean[] srcFixed; // source nodes that must not be moved
+    final LatLon[] dstCoords; // coordinates of target way nodes
+
+    /**
+     * @param srcWay - from which way to snap nodes
+     * @param dstWay - to which way to snap
+     * @param distThreshold distance between nodes and ways to start snapping
+     */
+    SnappingInput(Way srcWay, Way dstWay, double distThreshold) {
+        this.srcWay = srcWay;
+        this.dstWay = dstWay;
+        this.distThreshold = distThreshold;
+
+        final int srcWaySize = srcWay.getNodesCount();
+        this.srcCoords = new LatLon[srcWaySize];
+        this.srcFixed = new boolean[srcWaySize];
+        for (int i = 0; i < srcWaySize; i ++) {
+            Node n = srcWay.getNode(i);
+            srcCoords[i] = n.getCoor();
+            /* Nodes tying several ways or bearing tags should be kept
+             * untouched */
+            srcFixed[i] = nodeGluesWays(n) || n.isTagged();
+        }
+
+        final int dstWaySize = dstWay.getNodesCount();
+        this.dstCoords = new LatLon[dstWaySize];
+        for (int k = 0; k < dstWaySize; k ++) {
+            dstCoords[k] = dstWay.getNode(k).getCoor();
+        }
+    }
+
+    private static boolean nodeGluesWays(final Node node) {
+        Set<Node> referenceNeighbours = null;
+        for (final OsmPrimitive ref : node.getReferrers()) {
+            if (ref.getType() == OsmPrimitiveType.WAY) {
+                final Way way = ((Way) ref);
+                final Set<Node> neighbours = way.getNeighbours(node);
+                if (referenceNeighbours == null) {
+                    referenceNeighbours = neighbours;
+                } else if (!referenceNeighbours.containsAll(neighbours)) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || getClass() != obj.getClass())
+            return false;
+        SnappingInput other = (SnappingInput) obj;
+        /* Ways are compared by identity, their contents by value */
+        return srcWay == other.srcWay
+                && dstWay == other.dstWay
+                && Double.compare(distThreshold, other.distThreshold) == 0
+                && Arrays.equals(srcCoords, other.srcCoords)
+                && Arrays.equals(srcFixed, other.srcFixed)
+                && Arrays.equals(dstCoords, other.dstCoords);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = System.identityHashCode(srcWay);
+        result = 31 * result + System.identityHashCode(dstWay);
+        result = 31 * result + Double.hashCode(distThreshold);
+        result = 31 * result + Arrays.hashCode(srcCoords);
+        result = 31 * result + Arrays.hashCode(srcFixed);
+        result = 31 * result + Arrays.hashCode(dstCoords);
+        return result;
+    }
+}
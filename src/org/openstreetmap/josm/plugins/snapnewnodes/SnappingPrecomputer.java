@@ -0,0 +1,202 @@
+/*
+ * This file is part of SnapNewNodes plugin
+ * Copyright (c) 2019 Grigory Rechistov
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, version 2 or later
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+*/
+
+package org.openstreetmap.josm.plugins.snapnewnodes;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.openstreetmap.josm.data.osm.DataSelectionListener;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListenerAdapter;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager;
+import org.openstreetmap.josm.data.osm.event.DatasetEventManager.FireMode;
+import org.openstreetmap.josm.data.osm.event.SelectionEventManager;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.tools.Logging;
+
+/** Speculatively calculates replacement pairs in background as soon as
+ * two ways eligible for snapping are selected, so that the action only
+ * has to apply the result. A change of the selected ways or of their
+ * data discards the work in progress. All methods are to be called from EDT.
+ */
+class SnappingPrecomputer implements DataSelectionListener,
+                                            DataSetListenerAdapter.Listener {
+
+    /* Created on first use, its worker is a daemon so it never holds
+     * the application from exiting */
+    private ExecutorService executor;
+    private final DataSetListenerAdapter dataSetAdapter = new DataSetListenerAdapter(this);
+
+    /* Input of the last scheduled calculation and its result */
+    private SnappingInput pendingInput;
+    private Future<List<ReplacementPairs>> pendingResult;
+
+    public void install() {
+        SelectionEventManager.getInstance().addSelectionListenerForEdt(this);
+        DatasetEventManager.getInstance().addDatasetListener(dataSetAdapter,
+                                                             FireMode.IN_EDT_CONSOLIDATED);
+    }
+
+    public void uninstall() {
+        SelectionEventManager.getInstance().removeSelectionListener(this);
+        DatasetEventManager.getInstance().removeDatasetListener(dataSetAdapter);
+        discard();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void selectionChanged(SelectionChangeEvent event) {
+        reschedule();
+    }
+
+    @Override
+    public void processDatasetEvent(AbstractDatasetChangedEvent event) {
+        /* Without a pending calculation there is nothing to invalidate.
+         * In particular this skips events of the action's own commands,
+         * as the action has just taken the calculation away. */
+        if (pendingInput == null)
+            return;
+        /* A consolidated event without sub-events means the whole
+         * dataset has changed */
+        if ((event instanceof DataChangedEvent && ((DataChangedEvent) event).getEvents() == null)
+                || touchesPendingWays(event.getPrimitives())) {
+            reschedule();
+        }
+    }
+
+    /** Check whether changed primitives may affect the pending input: they
+     * are the ways themselves, their nodes or other ways sharing the nodes.
+     * @param primitives - primitives touched by a dataset event
+     * @return true if a new snapshot has to be taken
+     */
+    private boolean touchesPendingWays(final Collection<? extends OsmPrimitive> primitives) {
+        final Way srcWay = pendingInput.srcWay;
+        final Way dstWay = pendingInput.dstWay;
+        for (OsmPrimitive p : primitives) {
+            if (p == srcWay || p == dstWay)
+                return true;
+            if (p instanceof Node && referencesPendingWays((Node) p, srcWay, dstWay))
+                return true;
+            if (p instanceof Way) {
+                for (Node n : ((Way) p).getNodes()) {
+                    if (referencesPendingWays(n, srcWay, dstWay))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean referencesPendingWays(final Node n, final Way srcWay, final Way dstWay) {
+        for (OsmPrimitive ref : n.getReferrers()) {
+            if (ref == srcWay || ref == dstWay)
+                return true;
+        }
+        return false;
+    }
+
+    /** Start a new calculation if the selected ways differ from those
+     * of the current one, drop the current one if nothing is to be snapped */
+    private void reschedule() {
+        final DataSet ds = MainApplication.getLayerManager().getEditDataSet();
+        if (ds == null) {
+            discard();
+            return;
+        }
+        List<Way> selectedWays = SnapNewNodesAction.getEligibleWays(ds);
+        if (selectedWays.size() != 2) {
+            discard();
+            return;
+        }
+
+        final SnappingInput input = new SnappingInput(selectedWays.get(0),
+                                                      selectedWays.get(1),
+                                                      SnapNewNodesPreferenceSetting.getDistThreshold());
+        if (pendingResult != null && !pendingResult.isCancelled()
+                && input.equals(pendingInput)) {
+            /* Same ways selected again or an edit next to them that left
+             * the snapshot intact, the current calculation is still valid */
+            return;
+        }
+        discard();
+        pendingInput = input;
+        pendingResult = getExecutor().submit(() -> SnapNewNodesAction.getReplacementPairs(
+                input, () -> Thread.currentThread().isInterrupted()));
+    }
+
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "snapnewnodes-precompute");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+        }
+        return executor;
+    }
+
+    private void discard() {
+        if (pendingResult != null) {
+            pendingResult.cancel(true);
+        }
+        pendingResult = null;
+        pendingInput = null;
+    }
+
+    /** Obtain a speculatively calculated result. A calculation that is
+     * still running is cancelled rather than waited for, as its low priority
+     * worker may lag behind calculating it right away.
+     * The pending calculation is dropped in any case, as the caller is
+     * about to change the ways, and it is not restarted until the selection
+     * or the whole dataset changes.
+     * @param input - snapshot of ways the caller is about to snap
+     * @return replacement pairs or null if there is no matching result
+     */
+    public List<ReplacementPairs> takeResult(final SnappingInput input) {
+        final Future<List<ReplacementPairs>> result = pendingResult;
+        final boolean matches = input.equals(pendingInput);
+        discard();
+        if (result == null || !matches || !result.isDone()) {
+            return null;
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (CancellationException e) {
+            Logging.trace(e);
+        } catch (ExecutionException e) {
+            Logging.warn(e);
+        }
+        return null;
+    }
+}